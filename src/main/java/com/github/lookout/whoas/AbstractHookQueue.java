@@ -6,7 +6,12 @@ package com.github.lookout.whoas;
  * This allows for different queueing implementations behind whoas
  */
 public abstract class AbstractHookQueue {
+    /** Default maximum time a pop() will wait for an item to arrive */
+    public static final long DEFAULT_POLL_TIMEOUT_MILLIS = 1000;
+
     protected Boolean started = false;
+    protected long pollTimeoutMillis = DEFAULT_POLL_TIMEOUT_MILLIS;
+    protected Boolean recordEnqueueTime = false;
 
     public void start() {
         if (started) {
@@ -22,6 +27,60 @@ public abstract class AbstractHookQueue {
         started = false;
     }
 
+    /**
+     * @return maximum time in milliseconds a pop() will wait for an item
+     */
+    public long getPollTimeoutMillis() {
+        return this.pollTimeoutMillis;
+    }
+
+    /**
+     * @param pollTimeoutMillis maximum time in milliseconds a pop() will wait
+     *  for an item before returning without invoking its {@code QueueAction}
+     * @throws IllegalArgumentException if the timeout is null or not positive,
+     *  since the runloop would otherwise spin
+     */
+    public void setPollTimeoutMillis(Long pollTimeoutMillis) {
+        if ((pollTimeoutMillis == null) || (pollTimeoutMillis <= 0)) {
+            throw new IllegalArgumentException(
+                    "pollTimeoutMillis must be positive, got " + pollTimeoutMillis);
+        }
+        this.pollTimeoutMillis = pollTimeoutMillis;
+    }
+
+    /**
+     * @return true if requests are stamped with the time they were enqueued
+     */
+    public Boolean getRecordEnqueueTime() {
+        return this.recordEnqueueTime;
+    }
+
+    /**
+     * @param recordEnqueueTime stamp requests with the time they were
+     *  enqueued, so delivery tracing can report how long they waited
+     */
+    public void setRecordEnqueueTime(Boolean recordEnqueueTime) {
+        this.recordEnqueueTime = (recordEnqueueTime != null) && recordEnqueueTime;
+    }
+
+    /**
+     * Prepare a request to be put on the queue without modifying the
+     * caller's object
+     *
+     * @param request the {@code HookRequest} being enqueued
+     * @return a copy stamped with the current time if enqueue times are
+     *  recorded, otherwise a request without an enqueue time
+     */
+    protected HookRequest stampEnqueuedAt(HookRequest request) {
+        if (this.recordEnqueueTime) {
+            return request.copyWithEnqueuedAt(System.currentTimeMillis());
+        }
+        if (request.enqueuedAt != null) {
+            return request.copyWithEnqueuedAt(null);
+        }
+        return request;
+    }
+
     /**
      * @return Size of the queue, if not implemented by the provider, returns -1
      * @throws Exception implementors may throw Exceptions
@@ -29,6 +88,11 @@ public abstract class AbstractHookQueue {
     public abstract int getSize() throws Exception;
 
     /**
+     * Wait up to the poll timeout for an item and invoke the action with it
+     *
+     * If no item arrives within the poll timeout, this returns without
+     * invoking the action so callers may re-check whether to keep going
+     *
      * @param action a {@code QueueAction} to invoke
      * @throws Exception the underlying {@code QueueAction} may throw any form of exception
      */
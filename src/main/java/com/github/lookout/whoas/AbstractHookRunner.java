@@ -1,13 +1,27 @@
 package com.github.lookout.whoas;
 
+import java.util.HashSet;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 
 /**
  *
  */
 public abstract class AbstractHookRunner {
+    /** Extra time given to interrupted runloops to requeue their work */
+    private static final long DRAIN_GRACE_MILLIS = 1000;
+
     protected AbstractHookQueue queue;
     protected Publisher publisher;
-    protected Boolean keepGoing = true;
+    protected volatile Boolean keepGoing = true;
+
+    /** Threads currently executing a runloop */
+    private final Set<Thread> runloopThreads = new HashSet<Thread>();
+    /** Threads we have interrupted while draining */
+    private final Set<Thread> interruptedThreads = new HashSet<Thread>();
+    private Logger logger = LoggerFactory.getLogger(AbstractHookRunner.class);
 
     public AbstractHookRunner(AbstractHookQueue hookQueue) {
         this(hookQueue, new Publisher());
@@ -23,19 +37,155 @@ public abstract class AbstractHookRunner {
         return this.publisher;
     }
 
+    /**
+     * Register a listener to be notified after every delivery attempt made
+     * by this runner
+     *
+     * @param listener a {@code DeliveryListener} to notify
+     */
+    public void addDeliveryListener(DeliveryListener listener) {
+        this.publisher.addListener(listener);
+    }
+
+    /**
+     * @param listener a previously registered {@code DeliveryListener}
+     */
+    public void removeDeliveryListener(DeliveryListener listener) {
+        this.publisher.removeListener(listener);
+    }
+
     /** Block forever and run the runner's runloop.
+     *
+     * The runloop is registered for the duration of the call so that
+     * {@code drain()} can wait for and interrupt it
      *
      * @throws Exception uncaught exceptions from the {@code QueueAction}
      */
-    public abstract void run() throws Exception;
+    public final void run() throws Exception {
+        enterRunloop();
+        try {
+            runloop();
+        }
+        catch (Exception ex) {
+            /* Being drained, the queue has already requeued in-flight work */
+            if (!wasDrained(ex)) {
+                throw ex;
+            }
+        }
+        finally {
+            exitRunloop();
+        }
+    }
+
+    /**
+     * Whether an exception out of the runloop is just drain() stopping it
+     *
+     * Clients like Jedis wrap an interrupted borrow in their own exception
+     * types, so anything thrown after drain() has interrupted this thread
+     * counts as a drain exit too
+     */
+    private boolean wasDrained(Exception ex) {
+        if ((ex instanceof InterruptedException) && (!this.keepGoing)) {
+            return true;
+        }
+        synchronized (runloopThreads) {
+            return interruptedThreads.contains(Thread.currentThread());
+        }
+    }
+
+    /**
+     * Dequeue and publish requests until {@code keepGoing} is false
+     *
+     * @throws Exception uncaught exceptions from the {@code QueueAction}
+     */
+    protected abstract void runloop() throws Exception;
 
     /**
      * Tell the runloop to stop
      *
      * This will only come into effect after the runner has completed it's
-     * currently executing work
+     * currently executing work, and at most the queue's poll timeout later
+     * if it is waiting for work
      */
     public void stop() {
         this.keepGoing = false;
     }
+
+    /**
+     * Allow a stopped or drained runner to accept work again the next time
+     * {@code run()} is invoked
+     */
+    public void resume() {
+        this.keepGoing = true;
+    }
+
+    /**
+     * Stop accepting work and wait for the currently executing work to finish
+     *
+     * If the runloops have not exited within the timeout, they are
+     * interrupted so that any request waiting to be retried is returned to
+     * the queue rather than being lost or delivered twice
+     *
+     * @param timeoutMillis time to wait for in-flight work to finish
+     * @return true if all runloops exited
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public Boolean drain(long timeoutMillis) throws InterruptedException {
+        synchronized (runloopThreads) {
+            stop();
+            awaitRunloops(timeoutMillis);
+
+            if (runloopThreads.isEmpty()) {
+                return true;
+            }
+
+            logger.info("Interrupting {} runloop(s) which did not drain within {}ms",
+                        runloopThreads.size(), timeoutMillis);
+            for (Thread thread : runloopThreads) {
+                interruptedThreads.add(thread);
+                thread.interrupt();
+            }
+
+            awaitRunloops(queue.getPollTimeoutMillis() + DRAIN_GRACE_MILLIS);
+            return runloopThreads.isEmpty();
+        }
+    }
+
+    /**
+     * Register the current thread as executing a runloop
+     */
+    private void enterRunloop() {
+        synchronized (runloopThreads) {
+            runloopThreads.add(Thread.currentThread());
+        }
+    }
+
+    /**
+     * Unregister the current thread once its runloop has exited
+     */
+    private void exitRunloop() {
+        synchronized (runloopThreads) {
+            Thread current = Thread.currentThread();
+            runloopThreads.remove(current);
+
+            /* Don't leak an interrupt from drain() to the caller of run() */
+            if (interruptedThreads.remove(current)) {
+                Thread.interrupted();
+            }
+            runloopThreads.notifyAll();
+        }
+    }
+
+    /**
+     * Wait for all runloops to exit, must hold the runloopThreads monitor
+     */
+    private void awaitRunloops(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+
+        while ((!runloopThreads.isEmpty()) && (remaining > 0)) {
+            runloopThreads.wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+    }
 }
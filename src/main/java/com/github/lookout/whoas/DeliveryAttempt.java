@@ -0,0 +1,59 @@
+package com.github.lookout.whoas;
+
+
+/**
+ * Timing breakdown of a single attempt at delivering a {@code HookRequest}
+ *
+ * All durations are in milliseconds, and are -1 when they could not be
+ * measured. The default Jersey connector does not expose connection
+ * establishment separately, so resolving the hostname, connecting, the TLS
+ * handshake, writing the request and the server's processing time are all
+ * included in {@code responseMillis}
+ */
+public class DeliveryAttempt {
+    /** URL the request was delivered to */
+    public String url;
+
+    /** Number of retries which preceded this attempt, 0 for the first */
+    public int attemptNumber;
+
+    /**
+     * Time between the request last being put on the queue (including being
+     * requeued) and this delivery, only measured when the queue records
+     * enqueue times
+     *
+     * Only reported on the first attempt after a dequeue, retries are -1 as
+     * their delay is in {@code backoffMillis}
+     */
+    public long queueWaitMillis = -1;
+
+    /** Time slept backing off before this attempt */
+    public long backoffMillis = 0;
+
+    /** Time from sending the request until the response (or error) arrived */
+    public long responseMillis = -1;
+
+    /** Time to read the response body */
+    public long readMillis = -1;
+
+    /** HTTP status of the response, -1 if no response was received */
+    public int status = -1;
+
+    /** True if the request was delivered */
+    public boolean succeeded;
+
+    /** True if the {@code Publisher} will retry the request */
+    public boolean willRetry;
+
+    /** The error which failed the attempt, if any */
+    public Exception failure;
+
+    /**
+     * @return time spent on the attempt itself, excluding queue wait and
+     *  backoff
+     */
+    public long getAttemptMillis() {
+        return (Math.max(responseMillis, 0) +
+                Math.max(readMillis, 0));
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.lookout.whoas;
+
+
+/**
+ * Listeners are notified by the {@code Publisher} after every delivery
+ * attempt with a timing breakdown of that attempt
+ *
+ * Listeners are invoked on the runner's thread, so implementations should
+ * return quickly and must be thread-safe if the runner is concurrent
+ */
+public interface DeliveryListener {
+    public void onAttempt(DeliveryAttempt attempt);
+}
@@ -0,0 +1,106 @@
+package com.github.lookout.whoas;
+
+
+/**
+ * Rolling delivery statistics for a single endpoint URL, as collected by
+ * the {@code SlowEndpointTracker}
+ *
+ * The recent totals decay exponentially with the tracker's window as their
+ * time constant, so activity from one window ago counts for about a third
+ * and older activity quickly stops mattering
+ *
+ * Instances returned by the tracker are snapshots and will not change
+ */
+public class EndpointStats {
+    /** URL of the endpoint */
+    public String url;
+
+    /** Decayed number of recent delivery attempts to the endpoint */
+    public double recentAttempts;
+
+    /** Decayed number of recent attempts which did not succeed */
+    public double recentFailures;
+
+    /** Decayed time runners recently spent on the endpoint, including backoff */
+    public double recentBusyMillis;
+
+    /** Moving average of the time spent on each attempt in milliseconds */
+    public double averageMillis;
+
+    /** Moving average of the fraction of attempts which failed */
+    public double failureRate;
+
+    /** Milliseconds since the epoch of the most recent attempt */
+    public long lastAttemptAt;
+
+    /** Milliseconds since the epoch the recent totals were last decayed to */
+    private long decayedAt;
+    private boolean recorded = false;
+
+    /**
+     * @param url URL of the endpoint to collect statistics for
+     */
+    public EndpointStats(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Fold the attempt into the statistics
+     *
+     * @param attempt a {@code DeliveryAttempt} made to this endpoint
+     * @param weight weight of the attempt in the moving averages, between 0 and 1
+     * @param now milliseconds since the epoch
+     * @param windowMillis time constant for decaying the recent totals
+     */
+    synchronized void record(DeliveryAttempt attempt, double weight,
+                             long now, long windowMillis) {
+        double failed = (attempt.succeeded ? 0.0 : 1.0);
+        long attemptMillis = attempt.getAttemptMillis();
+
+        if (!this.recorded) {
+            this.averageMillis = attemptMillis;
+            this.failureRate = failed;
+            this.decayedAt = now;
+            this.recorded = true;
+        }
+        else {
+            this.averageMillis += (weight * (attemptMillis - this.averageMillis));
+            this.failureRate += (weight * (failed - this.failureRate));
+        }
+
+        decay(now, windowMillis);
+        this.recentAttempts += 1;
+        this.recentFailures += failed;
+        this.recentBusyMillis += (attemptMillis + attempt.backoffMillis);
+        this.lastAttemptAt = now;
+    }
+
+    /**
+     * @param now milliseconds since the epoch
+     * @param windowMillis time constant for decaying the recent totals
+     * @return a copy of the current statistics, decayed to now
+     */
+    synchronized EndpointStats snapshot(long now, long windowMillis) {
+        EndpointStats copy = new EndpointStats(this.url);
+        copy.recentAttempts = this.recentAttempts;
+        copy.recentFailures = this.recentFailures;
+        copy.recentBusyMillis = this.recentBusyMillis;
+        copy.averageMillis = this.averageMillis;
+        copy.failureRate = this.failureRate;
+        copy.lastAttemptAt = this.lastAttemptAt;
+        copy.decayedAt = this.decayedAt;
+        copy.recorded = this.recorded;
+        copy.decay(now, windowMillis);
+        return copy;
+    }
+
+    private void decay(long now, long windowMillis) {
+        if ((now > this.decayedAt) && (windowMillis > 0)) {
+            double factor = Math.exp(-((double)(now - this.decayedAt) / windowMillis));
+            this.recentAttempts *= factor;
+            this.recentFailures *= factor;
+            this.recentBusyMillis *= factor;
+        }
+        this.decayedAt = now;
+    }
+}
@@ -1,9 +1,12 @@
 package com.github.lookout.whoas;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.joda.time.DateTime;
 
 
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class HookRequest {
     @JsonProperty
     public int retries;
@@ -20,6 +23,14 @@ public class HookRequest {
     @JsonProperty
     public String contentType;
 
+    /**
+     * Milliseconds since the epoch at which the request was last put on the
+     * queue, only set when the queue is configured to record it
+     */
+    @JsonProperty
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Long enqueuedAt;
+
     /** Constructor for Jackson */
     public HookRequest() { }
 
@@ -37,4 +48,16 @@ public class HookRequest {
         this.postData = hookData;
         this.contentType = contentType;
     }
+
+    /**
+     * @param enqueuedAt milliseconds since the epoch, or null
+     * @return a copy of this request with the given enqueue time
+     */
+    public HookRequest copyWithEnqueuedAt(Long enqueuedAt) {
+        HookRequest copy = new HookRequest(this.url, this.postData, this.contentType);
+        copy.retries = this.retries;
+        copy.deliverAfter = this.deliverAfter;
+        copy.enqueuedAt = enqueuedAt;
+        return copy;
+    }
 }
@@ -2,6 +2,7 @@ package com.github.lookout.whoas;
 
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,10 +17,12 @@ public class InMemoryQueue extends AbstractHookQueue {
     /**
      * Create the InMemoryQueue from configuration
      *
-     * @param queueConfig not used
+     * @param queueConfig only the poll timeout and recordEnqueueTime are used
      */
     public InMemoryQueue(WhoasQueueConfig queueConfig) {
         this.internalQueue = new LinkedBlockingQueue<HookRequest>();
+        setPollTimeoutMillis(queueConfig.pollTimeoutMillis);
+        setRecordEnqueueTime(queueConfig.recordEnqueueTime);
     }
 
     /**
@@ -51,6 +54,8 @@ public class InMemoryQueue extends AbstractHookQueue {
      * Performs a blocking pop on the queue and invokes the closure with the
      * item popped from the queue
      *
+     * If nothing arrives within the poll timeout, the closure is not invoked
+     *
      * If the Closure throws an exception, the dequeued item will be returned
      * to the tail end of the queue
      */
@@ -59,7 +64,12 @@ public class InMemoryQueue extends AbstractHookQueue {
             throw new Exception("Must provide a Closure to InMemoryQueue.pop()");
         }
 
-        HookRequest item = this.internalQueue.take();
+        HookRequest item = this.internalQueue.poll(this.pollTimeoutMillis,
+                                                   TimeUnit.MILLISECONDS);
+
+        if (item == null) {
+            return;
+        }
 
         try {
             action.call(item);
@@ -67,7 +77,7 @@ public class InMemoryQueue extends AbstractHookQueue {
         catch (Exception ex) {
             /* Put this back on the tail end of the queue */
             logger.info("\"Pop\" on in-memory queue failed, putting it back on the tail-end", ex);
-            this.internalQueue.put(item);
+            this.internalQueue.put(stampEnqueuedAt(item));
         }
         finally {
         }
@@ -80,6 +90,6 @@ public class InMemoryQueue extends AbstractHookQueue {
      * otherwise true.
      */
     public Boolean push(HookRequest request) {
-        return this.internalQueue.offer(request);
+        return this.internalQueue.offer(stampEnqueuedAt(request));
     }
 }
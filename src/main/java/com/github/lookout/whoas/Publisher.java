@@ -1,5 +1,7 @@
 package com.github.lookout.whoas;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
@@ -24,6 +26,7 @@ public class Publisher {
 
     private Client jerseyClient;
     private int maxRetries;
+    private List<DeliveryListener> listeners = new CopyOnWriteArrayList<DeliveryListener>();
     private Logger logger = LoggerFactory.getLogger(Publisher.class);
 
     public Publisher() {
@@ -31,6 +34,24 @@ public class Publisher {
         this.maxRetries = DEFAULT_MAX_RETRIES;
     }
 
+    /**
+     * Register a listener to be notified after every delivery attempt
+     *
+     * Attempts are only timed while at least one listener is registered
+     *
+     * @param listener a {@code DeliveryListener} to notify
+     */
+    public void addListener(DeliveryListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * @param listener a previously registered {@code DeliveryListener}
+     */
+    public void removeListener(DeliveryListener listener) {
+        this.listeners.remove(listener);
+    }
+
     /**
      * Publish the request using the appropriate backoff and retry logic
      * defined in the Whoas documentation
@@ -40,31 +61,82 @@ public class Publisher {
      * @throws InterruptedException thrown if our attempts to backoff were interrupted
      */
     public Boolean publish(HookRequest request) throws InterruptedException {
+        long queueWaitMillis = -1;
+
+        if ((!this.listeners.isEmpty()) && (request.enqueuedAt != null)) {
+            queueWaitMillis = System.currentTimeMillis() - request.enqueuedAt;
+        }
+        return attempt(request, queueWaitMillis, 0);
+    }
+
+    /**
+     * Make a single delivery attempt, recursing on retries
+     */
+    private Boolean attempt(HookRequest request,
+                            long queueWaitMillis,
+                            long backoffMillis) throws InterruptedException {
         Response response = null;
         Boolean retryableExc = false;
+        DeliveryAttempt trace = null;
+        long sentAt = 0;
         Invocation inv = buildInvocationFrom(request);
 
+        if (!this.listeners.isEmpty()) {
+            trace = new DeliveryAttempt();
+            trace.url = request.url;
+            trace.attemptNumber = request.retries;
+            trace.queueWaitMillis = queueWaitMillis;
+            trace.backoffMillis = backoffMillis;
+            sentAt = System.nanoTime();
+        }
+
         try {
             response = inv.invoke();
+            if (trace != null) {
+                trace.status = response.getStatus();
+                trace.responseMillis = millisSince(sentAt);
+                sentAt = System.nanoTime();
+            }
             String responseBody = response.readEntity(String.class);
+            if (trace != null) {
+                trace.readMillis = millisSince(sentAt);
+            }
         }
         catch (ProcessingException exc) {
             logger.warn("POST to url \"{}\" failed", request.url, exc);
             retryableExc = true;
+            if (trace != null) {
+                if (trace.responseMillis < 0) {
+                    trace.responseMillis = millisSince(sentAt);
+                }
+                trace.failure = exc;
+            }
         }
 
         if ((retryableExc) || (shouldRetry(response))) {
             if (request.retries >= this.maxRetries) {
                 logger.error("Giving up on POST to url \"{}\" after {} retries",
                              request.url, request.retries);
+                notifyListeners(trace);
                 return false;
             }
+            if (trace != null) {
+                trace.willRetry = true;
+                notifyListeners(trace);
+            }
             request.retries = (request.retries + 1);
+
+            long sleptAt = System.nanoTime();
             backoffSleep(request.retries);
-            return this.publish(request);
+            /* Retries didn't wait on the queue, only the first attempt did */
+            return this.attempt(request, -1, millisSince(sleptAt));
         }
 
         logger.debug("POST to url \"{}\" succeeded", request.url);
+        if (trace != null) {
+            trace.succeeded = true;
+            notifyListeners(trace);
+        }
         return true;
     }
 
@@ -109,11 +181,34 @@ public class Publisher {
         Thread.sleep(naptime);
     }
 
+    private long millisSince(long nanoTime) {
+        return ((System.nanoTime() - nanoTime) / 1000000);
+    }
+
+    /**
+     * Deliver the trace to every listener, a failing listener must never
+     * fail the delivery itself
+     */
+    private void notifyListeners(DeliveryAttempt trace) {
+        if (trace == null) {
+            return;
+        }
+
+        for (DeliveryListener listener : this.listeners) {
+            try {
+                listener.onAttempt(trace);
+            }
+            catch (RuntimeException exc) {
+                logger.warn("DeliveryListener {} failed", listener, exc);
+            }
+        }
+    }
+
     /**
      * Build the JerseyInvocation instance needed to execute the webhook
      *
      */
-    private Invocation buildInvocationFrom(HookRequest request) {
+    Invocation buildInvocationFrom(HookRequest request) {
         String contentType = DEFAULT_CONTENT_TYPE;
 
         if ((request.contentType != null) &&
@@ -1,7 +1,9 @@
 package com.github.lookout.whoas;
 
+import java.io.IOException;
 import java.util.List;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
@@ -16,18 +18,43 @@ import org.slf4j.LoggerFactory;
 public class RedisQueue extends AbstractHookQueue {
     private WhoasQueueConfig queueConfig;
     private JedisPool pool = null;
-    private static Integer maxActiveConnections = 10;
-    private static Integer maxIdleConnections = 5;
-    private static Integer minIdleConnections = 1;
+    private JedisPool blockingPool = null;
+    /** Floor for the derived size of both connection pools */
+    private static final int DEFAULT_MIN_CONNECTIONS = 8;
     private Logger logger = LoggerFactory.getLogger(RedisQueue.class);
 
     /**
      * Create the RedisQueue with valid config
      *
      * @param queueConfig necessary configuration to connect to Redis
+     * @throws IllegalArgumentException if a required setting is null
      */
     public RedisQueue(WhoasQueueConfig queueConfig) {
+        requireSet("key", queueConfig.key);
+        requireSet("hostname", queueConfig.hostname);
+        requireSet("port", queueConfig.port);
+        requireSet("runnerConcurrency", queueConfig.runnerConcurrency);
+        requireSet("minIdleConnections", queueConfig.minIdleConnections);
+        requireSet("testOnBorrow", queueConfig.testOnBorrow);
+        requireSet("testOnReturn", queueConfig.testOnReturn);
+        requireSet("testWhileIdle", queueConfig.testWhileIdle);
+        requireSet("timeBetweenEvictionRunsMillis", queueConfig.timeBetweenEvictionRunsMillis);
+        requireSet("maxWaitMillis", queueConfig.maxWaitMillis);
+        requireSet("timeoutMillis", queueConfig.timeoutMillis);
+
         this.queueConfig = queueConfig;
+        setPollTimeoutMillis(queueConfig.pollTimeoutMillis);
+        setRecordEnqueueTime(queueConfig.recordEnqueueTime);
+    }
+
+    /**
+     * Reject settings which would otherwise fail with a
+     * {@code NullPointerException} once the queue is started
+     */
+    private static void requireSet(String name, Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException(name + " must be set for RedisQueue");
+        }
     }
 
     /**
@@ -45,6 +72,7 @@ public class RedisQueue extends AbstractHookQueue {
     public RedisQueue(JedisPool pool) {
         this();
         this.pool = pool;
+        this.blockingPool = pool;
     }
 
     /**
@@ -75,28 +103,87 @@ public class RedisQueue extends AbstractHookQueue {
             return;
         }
 
-        logger.debug("Setting up redis queue \"${this.queueConfig.key}\" on the server " +
-                "\"${this.queueConfig.hostname}:${this.queueConfig.port}");
+        logger.debug("Setting up redis queue \"{}\" on the server \"{}:{}\"",
+                this.queueConfig.key, this.queueConfig.hostname, this.queueConfig.port);
 
 
         /**
-         * Setup jedis pool
+         * Setup jedis pools
          *
          * A single jedis instance is NOT thread-safe. JedisPool maintains a thread-safe
          * pool of network connections. The pool will allow us to maintain a pool of
          * multiple jedis instances and use them reliably and efficiently across different
          * threads
+         *
+         * Blocking pops pin their connection while they wait, so they get a
+         * pool of their own and can never starve pushes of connections
          */
-        JedisPoolConfig poolConfig = new JedisPoolConfig();
-        poolConfig.setMaxTotal(maxActiveConnections);
-        poolConfig.setTestOnBorrow(true);
-        poolConfig.setTestOnReturn(true);
-        poolConfig.setMaxIdle(maxIdleConnections);
-        poolConfig.setMinIdle(minIdleConnections);
-        poolConfig.setTestWhileIdle(true);
+        pool = new JedisPool(buildPoolConfig(), this.queueConfig.hostname,
+                this.queueConfig.port, this.queueConfig.timeoutMillis);
+        blockingPool = new JedisPool(buildBlockingPoolConfig(), this.queueConfig.hostname,
+                this.queueConfig.port, this.queueConfig.timeoutMillis);
+    }
 
-        /* Create the pool */
-        pool = new JedisPool(poolConfig, this.queueConfig.hostname, this.queueConfig.port);
+    /**
+     * Build the pool configuration for non-blocking commands
+     *
+     * @return pool configuration derived from the {@code WhoasQueueConfig}
+     */
+    JedisPoolConfig buildPoolConfig() {
+        int maxTotal = Math.max(DEFAULT_MIN_CONNECTIONS,
+                                (2 * this.queueConfig.runnerConcurrency));
+        if (this.queueConfig.maxConnections != null) {
+            maxTotal = this.queueConfig.maxConnections;
+        }
+
+        int maxIdle = maxTotal;
+        if (this.queueConfig.maxIdleConnections != null) {
+            maxIdle = this.queueConfig.maxIdleConnections;
+        }
+
+        JedisPoolConfig poolConfig = buildCommonPoolConfig();
+        poolConfig.setMaxTotal(maxTotal);
+        poolConfig.setMaxIdle(maxIdle);
+        poolConfig.setMinIdle(Math.min(this.queueConfig.minIdleConnections, maxIdle));
+        return poolConfig;
+    }
+
+    /**
+     * Build the pool configuration for blocking consumers, sized so that
+     * every runner thread can hold a connection for its blocking pop
+     *
+     * Nothing ties runnerConcurrency to the number of threads actually
+     * popping, so the derived size never drops below DEFAULT_MIN_CONNECTIONS
+     * and borrowers wait for a connection rather than failing. A connection
+     * is only held for the blpop itself, not while the popped request is
+     * delivered, so it is returned within the poll timeout which bounds
+     * the wait
+     *
+     * @return pool configuration derived from the {@code WhoasQueueConfig}
+     */
+    JedisPoolConfig buildBlockingPoolConfig() {
+        int maxTotal = Math.max(DEFAULT_MIN_CONNECTIONS,
+                                this.queueConfig.runnerConcurrency);
+        if (this.queueConfig.maxBlockingConnections != null) {
+            maxTotal = this.queueConfig.maxBlockingConnections;
+        }
+
+        JedisPoolConfig poolConfig = buildCommonPoolConfig();
+        poolConfig.setMaxTotal(maxTotal);
+        poolConfig.setMaxIdle(maxTotal);
+        poolConfig.setMinIdle(0);
+        poolConfig.setMaxWaitMillis(-1);
+        return poolConfig;
+    }
+
+    private JedisPoolConfig buildCommonPoolConfig() {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setTestOnBorrow(this.queueConfig.testOnBorrow);
+        poolConfig.setTestOnReturn(this.queueConfig.testOnReturn);
+        poolConfig.setTestWhileIdle(this.queueConfig.testWhileIdle);
+        poolConfig.setTimeBetweenEvictionRunsMillis(this.queueConfig.timeBetweenEvictionRunsMillis);
+        poolConfig.setMaxWaitMillis(this.queueConfig.maxWaitMillis);
+        return poolConfig;
     }
 
     /**
@@ -105,16 +192,25 @@ public class RedisQueue extends AbstractHookQueue {
     @Override
     public void stop() {
         super.stop();
+        if (blockingPool != pool) {
+            blockingPool.destroy();
+        }
         pool.destroy();
         pool = null;
+        blockingPool = null;
     }
 
     /**
      * Performs a blocking pop on the queue and invokes the closure with the
      * item popped from the queue
      *
+     * Redis only supports whole second timeouts for blocking pops, so the poll
+     * timeout is rounded up to the next second. If nothing arrives in that
+     * time, the closure is not invoked
+     *
      * If the Closure throws an exception, the dequeued item will be returned
-     * to the tail end of the queue
+     * to the front of the queue. Items which cannot be decoded are moved to
+     * the dead letter list instead of being dropped
      */
     public void pop(final QueueAction action) throws Exception {
         if (action == null) {
@@ -125,29 +221,63 @@ public class RedisQueue extends AbstractHookQueue {
             throw new Exception("Queue must be started before this operation is invoked");
         }
 
-        withRedis(new RedisQueueAction<Long>() {
+        final int timeoutSeconds = (int)Math.max(1,
+                Math.ceil(this.pollTimeoutMillis / 1000.0));
+
+        /**
+         * Only the blpop itself holds a blocking connection, so delivering
+         * the request never keeps other runners from waiting for work
+         */
+        final String payload = (String)withRedis(this.blockingPool, new RedisQueueAction<String>() {
             @Override
-            public Long call(Jedis redisClient) throws Exception {
+            public String call(Jedis redisClient) throws Exception {
                 /**
-                * The blpop returns list of strings (key and value)
+                * The blpop returns list of strings (key and value), or
+                * nothing if the timeout expired
                 */
-                List<String> messages = redisClient.blpop(0, queueConfig.key);
-
-                /* If valid, decode message */
-                if ((messages != null) && (!messages.isEmpty())) {
-                    ObjectMapper mapper = new ObjectMapper();
-                    HookRequest request = mapper.readValue(messages.get(1), HookRequest.class);
-                    try {
-                        action.call(request);
-                    } catch (Exception ex) {
-                        /* Put this back on the front of the queue */
-                        logger.info("\"Pop\" on redis queue failed, pushing it back on front of the queue", ex);
-                        return redisClient.lpush(queueConfig.key, messages.get(1));
-                    }
+                List<String> messages = redisClient.blpop(timeoutSeconds, queueConfig.key);
+
+                if ((messages == null) || (messages.isEmpty())) {
+                    return null;
                 }
-                return new Long(-1);
+                return messages.get(1);
             }
         });
+
+        if (payload == null) {
+            return;
+        }
+
+        /* If valid, decode message */
+        HookRequest request;
+        try {
+            request = new ObjectMapper().readValue(payload, HookRequest.class);
+        } catch (IOException ex) {
+            /* Requeueing would just fail again, so set it aside */
+            logger.error("Could not decode request from \"{}\", moving it to \"{}\"",
+                         queueConfig.key, getDeadLetterKey(), ex);
+            withRedis(new RedisQueueAction<Long>() {
+                @Override
+                public Long call(Jedis redisClient) {
+                    return redisClient.rpush(getDeadLetterKey(), payload);
+                }
+            });
+            return;
+        }
+
+        try {
+            action.call(request);
+        } catch (Exception ex) {
+            /* Put this back on the front of the queue */
+            logger.info("\"Pop\" on redis queue failed, pushing it back on front of the queue", ex);
+            final String requeued = restamp(payload);
+            withRedis(new RedisQueueAction<Long>() {
+                @Override
+                public Long call(Jedis redisClient) {
+                    return redisClient.lpush(queueConfig.key, requeued);
+                }
+            });
+        }
     }
 
     /**
@@ -165,17 +295,46 @@ public class RedisQueue extends AbstractHookQueue {
         }
 
         ObjectMapper mapper = new ObjectMapper();
-        final String jsonPayload = mapper.writeValueAsString(request);
+        final String jsonPayload = mapper.writeValueAsString(stampEnqueuedAt(request));
         return (Boolean)withRedis(new RedisQueueAction<Boolean>() {
             @Override
             public Boolean call(Jedis redisClient) {
-                System.out.println(String.format("%s %s", queueConfig.key, jsonPayload));
+                logger.trace("Pushing {} onto \"{}\"", jsonPayload, queueConfig.key);
                 redisClient.rpush(queueConfig.key, jsonPayload);
                 return true;
             }
         });
     }
 
+    /**
+     * @return key of the list holding payloads which could not be decoded
+     */
+    public String getDeadLetterKey() {
+        if (this.queueConfig.deadLetterKey != null) {
+            return this.queueConfig.deadLetterKey;
+        }
+        return this.queueConfig.key + ":dead";
+    }
+
+    /**
+     * Update the enqueue time of a payload which is being requeued, leaving
+     * everything else in it untouched
+     *
+     * @param payload JSON encoded {@code HookRequest}
+     * @return the payload with a fresh enqueue time if enqueue times are
+     *  recorded, otherwise the payload unchanged
+     */
+    String restamp(String payload) throws IOException {
+        if (!this.recordEnqueueTime) {
+            return payload;
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode node = (ObjectNode)mapper.readTree(payload);
+        node.put("enqueuedAt", System.currentTimeMillis());
+        return mapper.writeValueAsString(node);
+    }
+
     /** Allocate redis client from the pool
      *
      * @param action callback to invoke with a {@code Jedis} object from the
@@ -184,8 +343,19 @@ public class RedisQueue extends AbstractHookQueue {
      * @return propogates a generic {@code Object} up from the {@code RedisQueueAction}
      */
     protected Object withRedis(RedisQueueAction action) throws Exception {
-        Jedis redisClient = this.pool.getResource();
-        System.out.println(redisClient.toString());
+        return withRedis(this.pool, action);
+    }
+
+    /** Allocate redis client from the given pool
+     *
+     * @param jedisPool pool to borrow the {@code Jedis} object from
+     * @param action callback to invoke with a {@code Jedis} object from the
+     *  pool
+     * @throws Exception propogates underlying Jedis exceptions
+     * @return propogates a generic {@code Object} up from the {@code RedisQueueAction}
+     */
+    protected Object withRedis(JedisPool jedisPool, RedisQueueAction action) throws Exception {
+        Jedis redisClient = jedisPool.getResource();
         try {
             return action.call(redisClient);
         }
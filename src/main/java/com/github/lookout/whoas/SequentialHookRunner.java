@@ -22,7 +22,7 @@ public class SequentialHookRunner extends AbstractHookRunner {
      * @throws Exception if we cannot execute or catch exceptions from the
      *  underlying {@code QueueAction}
      */
-    public void run() throws Exception {
+    protected void runloop() throws Exception {
         while (this.keepGoing) {
             this.queue.pop(new QueueAction() {
                 @Override
@@ -0,0 +1,165 @@
+package com.github.lookout.whoas;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * A {@code DeliveryListener} which keeps rolling statistics per endpoint so
+ * the slowest, most failing and most expensive endpoints can be queried
+ * at runtime
+ *
+ * Recent totals decay over the window, endpoints which have not been
+ * attempted within the window are forgotten, and at most maxEndpoints are
+ * tracked at once
+ */
+public class SlowEndpointTracker implements DeliveryListener {
+    private final int DEFAULT_MAX_ENDPOINTS = 1000;
+    private final long DEFAULT_WINDOW_MILLIS = (5 * 60 * 1000);
+    /** Weight of the newest attempt in the moving averages */
+    private final double DEFAULT_WEIGHT = 0.2;
+
+    private ConcurrentHashMap<String, EndpointStats> endpoints = new ConcurrentHashMap<String, EndpointStats>();
+    private int maxEndpoints;
+    private long windowMillis;
+    private double weight;
+
+    public SlowEndpointTracker() {
+        this.maxEndpoints = DEFAULT_MAX_ENDPOINTS;
+        this.windowMillis = DEFAULT_WINDOW_MILLIS;
+        this.weight = DEFAULT_WEIGHT;
+    }
+
+    /**
+     * @param maxEndpoints maximum number of endpoints to track at once
+     * @param windowMillis time constant for decaying recent totals, and
+     *  forget endpoints which have not been attempted for this long
+     */
+    public SlowEndpointTracker(int maxEndpoints, long windowMillis) {
+        this();
+        this.maxEndpoints = maxEndpoints;
+        this.windowMillis = windowMillis;
+    }
+
+    @Override
+    public void onAttempt(DeliveryAttempt attempt) {
+        EndpointStats stats = this.endpoints.get(attempt.url);
+
+        if (stats == null) {
+            if (this.endpoints.size() >= this.maxEndpoints) {
+                evict();
+            }
+            stats = new EndpointStats(attempt.url);
+            EndpointStats existing = this.endpoints.putIfAbsent(attempt.url, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        stats.record(attempt, this.weight, now(), this.windowMillis);
+    }
+
+    /**
+     * @param limit maximum number of endpoints to return
+     * @return endpoints with the highest average attempt time, slowest first
+     */
+    public List<EndpointStats> getSlowest(int limit) {
+        return top(limit, new Comparator<EndpointStats>() {
+            @Override
+            public int compare(EndpointStats a, EndpointStats b) {
+                return Double.compare(b.averageMillis, a.averageMillis);
+            }
+        });
+    }
+
+    /**
+     * @param limit maximum number of endpoints to return
+     * @return endpoints with the highest failure rate, most failing first
+     */
+    public List<EndpointStats> getFailing(int limit) {
+        return top(limit, new Comparator<EndpointStats>() {
+            @Override
+            public int compare(EndpointStats a, EndpointStats b) {
+                int byRate = Double.compare(b.failureRate, a.failureRate);
+                if (byRate != 0) {
+                    return byRate;
+                }
+                return Double.compare(b.recentFailures, a.recentFailures);
+            }
+        });
+    }
+
+    /**
+     * @param limit maximum number of endpoints to return
+     * @return endpoints which have recently consumed the most runner time,
+     *  including backoff, busiest first
+     */
+    public List<EndpointStats> getBusiest(int limit) {
+        return top(limit, new Comparator<EndpointStats>() {
+            @Override
+            public int compare(EndpointStats a, EndpointStats b) {
+                return Double.compare(b.recentBusyMillis, a.recentBusyMillis);
+            }
+        });
+    }
+
+    /**
+     * Forget all collected statistics
+     */
+    public void reset() {
+        this.endpoints.clear();
+    }
+
+    /**
+     * @return milliseconds since the epoch
+     */
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private List<EndpointStats> top(int limit, Comparator<EndpointStats> order) {
+        long now = now();
+        long cutoff = now - this.windowMillis;
+        List<EndpointStats> snapshots = new ArrayList<EndpointStats>();
+
+        for (EndpointStats stats : this.endpoints.values()) {
+            EndpointStats snapshot = stats.snapshot(now, this.windowMillis);
+            if (snapshot.lastAttemptAt >= cutoff) {
+                snapshots.add(snapshot);
+            }
+        }
+
+        Collections.sort(snapshots, order);
+        if (snapshots.size() > limit) {
+            return new ArrayList<EndpointStats>(snapshots.subList(0, limit));
+        }
+        return snapshots;
+    }
+
+    /**
+     * Make room for a new endpoint by dropping those outside of the window,
+     * or the least recently attempted one if all are within it
+     */
+    private void evict() {
+        long cutoff = now() - this.windowMillis;
+        EndpointStats oldest = null;
+        Iterator<EndpointStats> iter = this.endpoints.values().iterator();
+
+        while (iter.hasNext()) {
+            EndpointStats stats = iter.next();
+            if (stats.lastAttemptAt < cutoff) {
+                iter.remove();
+            }
+            else if ((oldest == null) || (stats.lastAttemptAt < oldest.lastAttemptAt)) {
+                oldest = stats;
+            }
+        }
+
+        if ((oldest != null) && (this.endpoints.size() >= this.maxEndpoints)) {
+            this.endpoints.remove(oldest.url);
+        }
+    }
+}
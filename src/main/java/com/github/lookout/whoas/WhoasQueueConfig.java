@@ -39,4 +39,130 @@ public class WhoasQueueConfig {
     @JsonProperty
     public Integer port = 6379;
 
+    /**
+     *  Number of runner threads expected to consume from the queue
+     *
+     *  Used to derive connection pool sizes when they are not explicitly
+     *  configured. Default is 1 (i.e. a single SequentialHookRunner)
+     */
+    @JsonProperty
+    public Integer runnerConcurrency = 1;
+
+    /**
+     *  Maximum time in milliseconds a pop will wait for an item to arrive
+     *  before giving runners a chance to stop, must be positive
+     *
+     *  Default is 1000
+     */
+    @JsonProperty
+    public Long pollTimeoutMillis = AbstractHookQueue.DEFAULT_POLL_TIMEOUT_MILLIS;
+
+    /**
+     *  Stamp requests with the time they were enqueued, so delivery tracing
+     *  can report how long they waited in the queue
+     *
+     *  Older Whoas releases cannot decode stamped requests, so only enable
+     *  this once every consumer of the queue has been upgraded.
+     *  Default is false
+     */
+    @JsonProperty
+    public Boolean recordEnqueueTime = false;
+
+    /**
+     *  key of the list which payloads that cannot be decoded are moved to
+     *
+     *  Default (null) is the queue key followed by ":dead"
+     */
+    @JsonProperty
+    public String deadLetterKey = null;
+
+    /**
+     *  Maximum number of connections used for non-blocking commands
+     *  (push, size, etc.)
+     *
+     *  Default (null) is derived from runnerConcurrency
+     */
+    @JsonProperty
+    public Integer maxConnections = null;
+
+    /**
+     *  Maximum number of idle connections kept for non-blocking commands
+     *
+     *  Default (null) is the same as maxConnections
+     */
+    @JsonProperty
+    public Integer maxIdleConnections = null;
+
+    /**
+     *  Minimum number of idle connections kept for non-blocking commands
+     *
+     *  Default is 1
+     */
+    @JsonProperty
+    public Integer minIdleConnections = 1;
+
+    /**
+     *  Maximum number of connections used by blocking consumers (pop)
+     *
+     *  Each blocking pop pins a connection for as long as it waits for an
+     *  item (at most the poll timeout), so these are kept in a separate pool
+     *  from the non-blocking commands. Delivering and requeueing the popped
+     *  item use the non-blocking pool. Pops wait for a free connection
+     *  rather than failing when all are in use.
+     *
+     *  Default (null) is max(8, runnerConcurrency)
+     */
+    @JsonProperty
+    public Integer maxBlockingConnections = null;
+
+    /**
+     *  Validate connections with a PING when borrowing from the pool
+     *
+     *  Default is false, since this costs an extra round trip per operation
+     */
+    @JsonProperty
+    public Boolean testOnBorrow = false;
+
+    /**
+     *  Validate connections with a PING when returning them to the pool
+     *
+     *  Default is false, since this costs an extra round trip per operation
+     */
+    @JsonProperty
+    public Boolean testOnReturn = false;
+
+    /**
+     *  Validate idle connections in the background evictor
+     *
+     *  Default is true
+     */
+    @JsonProperty
+    public Boolean testWhileIdle = true;
+
+    /**
+     *  Interval between runs of the idle connection evictor in milliseconds
+     *
+     *  Default is 30000
+     */
+    @JsonProperty
+    public Long timeBetweenEvictionRunsMillis = 30000L;
+
+    /**
+     *  Maximum time in milliseconds to wait for a free connection from the
+     *  non-blocking pool before failing, -1 waits forever
+     *
+     *  Default is 2000
+     */
+    @JsonProperty
+    public Long maxWaitMillis = 2000L;
+
+    /**
+     *  Connect and socket timeout in milliseconds for the distributed queue
+     *  server
+     *
+     *  Default is 2000
+     */
+    @JsonProperty
+    public Integer timeoutMillis = 2000;
+
 }
@@ -1,6 +1,40 @@
 package com.github.lookout.whoas
 
+import com.fasterxml.jackson.databind.ObjectMapper
 import spock.lang.*
 
 class HookRequestSpec extends Specification {
+    private ObjectMapper mapper = new ObjectMapper()
+
+    def "decoding should ignore unknown properties"() {
+        when:
+        HookRequest request = mapper.readValue('{"url":"http://spock.invalid","fromTheFuture":1}',
+                                               HookRequest)
+
+        then:
+        request.url == 'http://spock.invalid'
+    }
+
+    def "encoding should leave out an unset enqueuedAt"() {
+        expect:
+        !mapper.writeValueAsString(new HookRequest()).contains('enqueuedAt')
+    }
+
+    def "copyWithEnqueuedAt() should copy every field"() {
+        given:
+        HookRequest request = new HookRequest('http://spock.invalid', '{}', 'text/plain')
+        request.retries = 2
+
+        when:
+        HookRequest copy = request.copyWithEnqueuedAt(42L)
+
+        then:
+        !copy.is(request)
+        copy.url == request.url
+        copy.postData == request.postData
+        copy.contentType == request.contentType
+        copy.retries == 2
+        copy.enqueuedAt == 42L
+        request.enqueuedAt == null
+    }
 }
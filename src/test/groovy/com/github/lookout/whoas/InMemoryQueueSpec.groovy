@@ -24,6 +24,44 @@ class InMemoryQueueSpec extends Specification {
         thrown Exception
     }
 
+    def "pop() should return without calling the closure after the poll timeout"() {
+        given:
+        Boolean executedClosure = false
+        InMemoryQueue queue = new InMemoryQueue()
+        queue.pollTimeoutMillis = 10
+
+        when:
+        queue.pop { executedClosure = true }
+
+        then:
+        !executedClosure
+    }
+
+    def "the poll timeout should be taken from the configuration"() {
+        given:
+        WhoasQueueConfig config = new WhoasQueueConfig()
+        config.pollTimeoutMillis = 250
+
+        expect:
+        new InMemoryQueue(config).pollTimeoutMillis == 250
+    }
+
+    @Unroll
+    def "a poll timeout of #timeout should be rejected"() {
+        given:
+        WhoasQueueConfig config = new WhoasQueueConfig()
+        config.pollTimeoutMillis = timeout
+
+        when:
+        new InMemoryQueue(config)
+
+        then:
+        thrown IllegalArgumentException
+
+        where:
+        timeout << [null, 0L, -1L]
+    }
+
     def "push() should put onto the internal queue"() {
         given:
         InMemoryQueue queue = new InMemoryQueue()
@@ -34,6 +72,36 @@ class InMemoryQueueSpec extends Specification {
         then:
         queue.size == 1
     }
+
+    def "push() should not stamp requests by default"() {
+        given:
+        InMemoryQueue queue = new InMemoryQueue()
+        HookRequest popped = null
+
+        when:
+        queue.push(new HookRequest())
+        queue.pop { popped = it }
+
+        then:
+        popped.enqueuedAt == null
+    }
+
+    def "push() should stamp a copy of the request when recording enqueue times"() {
+        given:
+        InMemoryQueue queue = new InMemoryQueue()
+        queue.recordEnqueueTime = true
+        HookRequest request = new HookRequest('http://spock.invalid', '{}', '')
+        HookRequest popped = null
+
+        when:
+        queue.push(request)
+        queue.pop { popped = it }
+
+        then:
+        request.enqueuedAt == null
+        popped.enqueuedAt != null
+        popped.url == request.url
+    }
 }
 
 
@@ -26,6 +26,99 @@ class PublisherSpec extends Specification {
 
     }
 
+    def "publish() should notify listeners of every attempt"() {
+        given:
+        publisher = Spy(Publisher)
+        HookRequest req = new HookRequest('http://spock.invalid', '', '')
+        req.enqueuedAt = System.currentTimeMillis()
+        List<DeliveryAttempt> attempts = []
+        publisher.addListener({ attempts << it } as DeliveryListener)
+        _ * publisher.backoffSleep(_) >> null
+
+        when:
+        publisher.publish(req)
+
+        then:
+        attempts*.attemptNumber == [0, 1, 2, 3, 4, 5]
+        attempts.every { !it.succeeded && it.failure }
+        attempts[0].queueWaitMillis >= 0
+        attempts[1..5].every { it.queueWaitMillis == -1 }
+        attempts[0..4].every { it.willRetry }
+        !attempts[5].willRetry
+    }
+
+    def "publish() should trace a successful response"() {
+        given:
+        publisher = Spy(Publisher)
+        HookRequest req = new HookRequest('http://spock.invalid', '', '')
+        Invocation inv = Mock(Invocation)
+        Response response = Mock(Response)
+        _ * publisher.buildInvocationFrom(_) >> inv
+        _ * inv.invoke() >> response
+        _ * response.status >> 200
+        _ * response.readEntity(String) >> 'ok'
+        List<DeliveryAttempt> attempts = []
+        publisher.addListener({ attempts << it } as DeliveryListener)
+
+        when:
+        Boolean published = publisher.publish(req)
+
+        then:
+        published
+        attempts.size() == 1
+        attempts[0].status == 200
+        attempts[0].succeeded
+        !attempts[0].willRetry
+        attempts[0].failure == null
+        attempts[0].responseMillis >= 0
+        attempts[0].readMillis >= 0
+        attempts[0].queueWaitMillis == -1
+    }
+
+    def "publish() should trace every attempt on a server error"() {
+        given:
+        publisher = Spy(Publisher)
+        HookRequest req = new HookRequest('http://spock.invalid', '', '')
+        req.enqueuedAt = System.currentTimeMillis()
+        Invocation inv = Mock(Invocation)
+        Response response = Mock(Response)
+        _ * publisher.buildInvocationFrom(_) >> inv
+        _ * publisher.backoffSleep(_) >> null
+        _ * inv.invoke() >> response
+        _ * response.status >> 503
+        _ * response.readEntity(String) >> 'unavailable'
+        List<DeliveryAttempt> attempts = []
+        publisher.addListener({ attempts << it } as DeliveryListener)
+
+        when:
+        Boolean published = publisher.publish(req)
+
+        then:
+        !published
+        attempts*.attemptNumber == [0, 1, 2, 3, 4, 5]
+        attempts.every { it.status == 503 && !it.succeeded && it.failure == null }
+        attempts.every { it.responseMillis >= 0 && it.readMillis >= 0 }
+        attempts[1..5].every { it.backoffMillis >= 0 }
+        attempts[0].queueWaitMillis >= 0
+        attempts[1..5].every { it.queueWaitMillis == -1 }
+        attempts[0..4].every { it.willRetry }
+        !attempts[5].willRetry
+    }
+
+    def "a failing listener should not fail the delivery"() {
+        given:
+        publisher = Spy(Publisher)
+        HookRequest req = new HookRequest('http://spock.invalid', '', '')
+        publisher.addListener({ throw new RuntimeException('Spockd!') } as DeliveryListener)
+        _ * publisher.backoffSleep(_) >> null
+
+        when:
+        publisher.publish(req)
+
+        then:
+        notThrown RuntimeException
+    }
+
     def "shouldRetry() for status codes"() {
         given:
         Response r = Mock(Response)
@@ -1,10 +1,19 @@
 package com.github.lookout.whoas
 
+import com.fasterxml.jackson.databind.ObjectMapper
 import com.fiftyonred.mock_jedis.MockJedis
 import com.fiftyonred.mock_jedis.MockJedisPool
 import redis.clients.jedis.Jedis
 import redis.clients.jedis.JedisPool
 import redis.clients.jedis.JedisPoolConfig
+import org.apache.commons.pool2.BasePooledObjectFactory
+import org.apache.commons.pool2.PooledObject
+import org.apache.commons.pool2.impl.DefaultPooledObject
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
 import spock.lang.*
 
@@ -14,6 +23,31 @@ class RedisQueueSpec extends Specification {
         return new MockJedisPool(new JedisPoolConfig(), 'example.com')
     }
 
+    /**
+     * Build a real pool with the given configuration which hands out mock
+     * clients whose blpop() calls the given closure
+     */
+    static JedisPool mockBlockingPool(JedisPoolConfig config, Closure blpop) {
+        JedisPool pool = new JedisPool(config, 'example.com')
+        pool.initPool(config, new BasePooledObjectFactory<Jedis>() {
+            @Override
+            Jedis create() {
+                return new MockJedis('example.com') {
+                    @Override
+                    List<String> blpop(int timeout, String key) {
+                        return blpop.call()
+                    }
+                }
+            }
+
+            @Override
+            PooledObject<Jedis> wrap(Jedis jedis) {
+                return new DefaultPooledObject<Jedis>(jedis)
+            }
+        })
+        return pool
+    }
+
     def "getSize()ing without a start should throw"() {
         given:
         RedisQueue q = new RedisQueue()
@@ -69,6 +103,141 @@ class RedisQueueSpec extends Specification {
         thrown Exception
     }
 
+    def "pool configuration should skip PING validation by default"() {
+        given:
+        RedisQueue q = new RedisQueue()
+
+        expect:
+        !q.buildPoolConfig().testOnBorrow
+        !q.buildPoolConfig().testOnReturn
+        q.buildPoolConfig().testWhileIdle
+    }
+
+    def "pool sizes should be derived from the runner concurrency"() {
+        given:
+        WhoasQueueConfig config = new WhoasQueueConfig()
+        config.runnerConcurrency = 16
+        RedisQueue q = new RedisQueue(config)
+
+        expect:
+        q.buildPoolConfig().maxTotal == 32
+        q.buildBlockingPoolConfig().maxTotal == 16
+        q.buildBlockingPoolConfig().maxIdle == 16
+    }
+
+    def "the blocking pool should not be smaller than the default floor"() {
+        given:
+        RedisQueue q = new RedisQueue(new WhoasQueueConfig())
+
+        expect:
+        q.buildBlockingPoolConfig().maxTotal == 8
+        q.buildBlockingPoolConfig().maxWaitMillis == -1
+    }
+
+    def "concurrent pop()s should each get a connection with the default config"() {
+        given:
+        RedisQueue q = new RedisQueue(new WhoasQueueConfig())
+        CyclicBarrier bothBlocking = new CyclicBarrier(2)
+        /* blpop() only returns once both pops are holding a connection at
+         * the same time
+         */
+        JedisPool pool = mockBlockingPool(q.buildBlockingPoolConfig()) {
+            bothBlocking.await(5, TimeUnit.SECONDS)
+            return null
+        }
+        q = new RedisQueue(pool)
+        q.start()
+        List<Throwable> errors = [].asSynchronized()
+
+        when:
+        List<Thread> threads = (1..2).collect {
+            Thread.start {
+                try {
+                    q.pop { }
+                }
+                catch (Throwable t) {
+                    errors << t
+                }
+            }
+        }
+        threads*.join()
+
+        then:
+        errors.isEmpty()
+    }
+
+    def "a pop() delivering a request should not hold a blocking connection"() {
+        given:
+        WhoasQueueConfig config = new WhoasQueueConfig()
+        config.maxBlockingConnections = 1
+        RedisQueue q = new RedisQueue(config)
+        String payload = new ObjectMapper().writeValueAsString(new HookRequest())
+        AtomicInteger blpops = new AtomicInteger()
+        q.blockingPool = mockBlockingPool(q.buildBlockingPoolConfig()) {
+            return (blpops.getAndIncrement() == 0) ? ['queue', payload] : null
+        }
+        q.pool = mockPool()
+        q.start()
+        CountDownLatch delivering = new CountDownLatch(1)
+        CountDownLatch release = new CountDownLatch(1)
+        Thread first = Thread.start {
+            q.pop {
+                delivering.countDown()
+                release.await()
+            }
+        }
+        delivering.await()
+
+        when:
+        /* The only blocking connection must be free while the first pop is
+         * still delivering
+         */
+        Thread second = Thread.start { q.pop { } }
+        second.join(5000)
+
+        then:
+        !second.alive
+
+        cleanup:
+        release.countDown()
+        first.join()
+        second.join()
+    }
+
+    @Unroll
+    def "a null #setting should be rejected when the queue is created"() {
+        given:
+        WhoasQueueConfig config = new WhoasQueueConfig()
+        config."${setting}" = null
+
+        when:
+        new RedisQueue(config)
+
+        then:
+        IllegalArgumentException ex = thrown()
+        ex.message.contains(setting)
+
+        where:
+        setting << ['key', 'hostname', 'port', 'runnerConcurrency',
+                    'minIdleConnections', 'testOnBorrow', 'testOnReturn',
+                    'testWhileIdle', 'timeBetweenEvictionRunsMillis',
+                    'maxWaitMillis', 'timeoutMillis']
+    }
+
+    def "explicitly configured pool sizes should override the derived ones"() {
+        given:
+        WhoasQueueConfig config = new WhoasQueueConfig()
+        config.maxConnections = 3
+        config.maxIdleConnections = 2
+        config.maxBlockingConnections = 4
+        RedisQueue q = new RedisQueue(config)
+
+        expect:
+        q.buildPoolConfig().maxTotal == 3
+        q.buildPoolConfig().maxIdle == 2
+        q.buildBlockingPoolConfig().maxTotal == 4
+    }
+
 }
 
 /** Spec for testing Jedis interactions with mock-jedis */
@@ -119,6 +288,62 @@ class RedisQueueMockIntegrationSpec extends RedisQueueSpec {
         store.size == 0
     }
 
+    def "pop() should block for the poll timeout rounded up to seconds"() {
+        given:
+        1 * client.blpop(2, _) >> null
+
+        when:
+        queue.pollTimeoutMillis = 1500
+        queue.start()
+        queue.pop { }
+
+        then:
+        notThrown Exception
+    }
+
+    def "push() should not write enqueuedAt by default"() {
+        given:
+        1 * client.rpush(_, _) >> { key, payload -> store << payload[0]; return 1 }
+
+        when:
+        queue.start()
+        queue.push(new HookRequest())
+
+        then:
+        !store[0].contains('enqueuedAt')
+    }
+
+    def "pop() should move a payload which cannot be decoded to the dead letter list"() {
+        given:
+        Boolean executedClosure = false
+        1 * client.blpop(*_) >> { [null, 'not a request'] }
+        1 * client.rpush('queue:dead', 'not a request') >> 1
+        0 * client.lpush(*_)
+
+        when:
+        queue.start()
+        queue.pop { executedClosure = true }
+
+        then:
+        !executedClosure
+    }
+
+    def "pop() should restamp requeued payloads when recording enqueue times"() {
+        given:
+        String payload = '{"url":"http://spock.invalid","enqueuedAt":1}'
+        String requeued = null
+        1 * client.blpop(*_) >> { [null, payload] }
+        1 * client.lpush(_, _) >> { key, values -> requeued = values[0]; return 1 }
+
+        when:
+        queue.recordEnqueueTime = true
+        queue.start()
+        queue.pop { throw new Exception('Spockd!') }
+
+        then:
+        new ObjectMapper().readValue(requeued, HookRequest).enqueuedAt > 1
+    }
+
     def "push() on rpush exception should return false"() {
         given:
         1 * client.rpush(*_) >> { throw new Exception('Spockd!') }
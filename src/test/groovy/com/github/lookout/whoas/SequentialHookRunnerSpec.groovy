@@ -1,8 +1,12 @@
 package com.github.lookout.whoas
 
+import redis.clients.jedis.Jedis
 import spock.lang.*
 
 import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicReference
 
 class SequentialHookRunnerSpec extends Specification {
     private InMemoryQueue queue = new InMemoryQueue(new ArrayBlockingQueue(1))
@@ -34,4 +38,131 @@ class SequentialHookRunnerSpec extends Specification {
         then:
         queue.size == 0
     }
+
+    def "drain() should stop an idle runner within the poll timeout"() {
+        given:
+        CountDownLatch polling = new CountDownLatch(1)
+        InMemoryQueue idleQueue = new InMemoryQueue(new ArrayBlockingQueue(1)) {
+            @Override
+            void pop(QueueAction action) {
+                polling.countDown()
+                super.pop(action)
+            }
+        }
+        idleQueue.pollTimeoutMillis = 10
+        AtomicBoolean exited = new AtomicBoolean(false)
+        SequentialHookRunner runner = new SequentialHookRunner(idleQueue, Mock(Publisher)) {
+            @Override
+            protected void runloop() {
+                super.runloop()
+                exited.set(true)
+            }
+        }
+        Thread thread = Thread.start { runner.run() }
+        /* Only drain once the runloop is actually waiting for work */
+        polling.await()
+
+        when:
+        Boolean drained = runner.drain(5000)
+
+        then:
+        drained
+        exited.get()
+
+        cleanup:
+        thread.join()
+    }
+
+    def "drain() should requeue a request stuck in backoff"() {
+        given:
+        queue.pollTimeoutMillis = 10
+        Publisher p = Mock(Publisher)
+        SequentialHookRunner runner = new SequentialHookRunner(queue, p)
+        HookRequest request = new HookRequest('http://spock.invalid', '{}', '')
+        CountDownLatch publishing = new CountDownLatch(1)
+        1 * p.publish(request) >> {
+            publishing.countDown()
+            /* Simulate a long backoffSleep() */
+            Thread.sleep(60 * 1000)
+        }
+        queue.push(request)
+        Thread thread = Thread.start { runner.run() }
+        publishing.await()
+
+        when:
+        Boolean drained = runner.drain(10)
+
+        then:
+        drained
+        queue.size == 1
+
+        cleanup:
+        thread.join()
+    }
+
+    def "drain() should stop a runner waiting for a blocking Redis connection"() {
+        given:
+        WhoasQueueConfig config = new WhoasQueueConfig()
+        config.maxBlockingConnections = 1
+        config.pollTimeoutMillis = 10
+        RedisQueue redisQueue = new RedisQueue(config)
+        redisQueue.blockingPool = RedisQueueSpec.mockBlockingPool(redisQueue.buildBlockingPoolConfig()) {
+            return null
+        }
+        redisQueue.pool = new RedisQueueSpec().mockPool()
+        redisQueue.start()
+        /* Hold the only blocking connection so the runloop parks borrowing it */
+        Jedis held = redisQueue.blockingPool.resource
+        SequentialHookRunner runner = new SequentialHookRunner(redisQueue, Mock(Publisher))
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>()
+        Thread thread = Thread.start {
+            try {
+                runner.run()
+            }
+            catch (Throwable ex) {
+                failure.set(ex)
+            }
+        }
+        while (thread.state != Thread.State.WAITING) {
+            Thread.sleep(1)
+        }
+
+        when:
+        Boolean drained = runner.drain(10)
+
+        then:
+        drained
+        failure.get() == null
+
+        cleanup:
+        thread.join()
+        redisQueue.blockingPool.returnResource(held)
+    }
+
+    def "resume() should allow a drained runner to run again"() {
+        given:
+        queue.pollTimeoutMillis = 10
+        Publisher p = Mock(Publisher)
+        SequentialHookRunner runner = new SequentialHookRunner(queue, p)
+        HookRequest first = new HookRequest('http://spock.invalid', '{}', '')
+        HookRequest second = new HookRequest('http://spock.invalid', '{}', '')
+        CountDownLatch published = new CountDownLatch(1)
+        1 * p.publish(first) >> { published.countDown() }
+        1 * p.publish(second) >> { runner.stop() }
+        queue.push(first)
+        Thread thread = Thread.start { runner.run() }
+        published.await()
+
+        when:
+        Boolean drained = runner.drain(5000)
+        thread.join(5000)
+        queue.push(second)
+        runner.resume()
+        runner.run()
+
+        then:
+        drained
+        !thread.alive
+        queue.size == 0
+    }
 }
@@ -0,0 +1,113 @@
+package com.github.lookout.whoas
+
+import spock.lang.*
+
+class SlowEndpointTrackerSpec extends Specification {
+    private static final long WINDOW = 60 * 1000
+    private ClockedSlowEndpointTracker tracker = new ClockedSlowEndpointTracker(1000, WINDOW)
+
+    private DeliveryAttempt attempt(String url, long millis, boolean succeeded) {
+        return new DeliveryAttempt(url: url,
+                                   responseMillis: millis,
+                                   succeeded: succeeded)
+    }
+
+    def "getSlowest() should order endpoints by average attempt time"() {
+        given:
+        tracker.onAttempt(attempt('http://fast', 10, true))
+        tracker.onAttempt(attempt('http://slow', 500, true))
+        tracker.onAttempt(attempt('http://medium', 100, true))
+
+        when:
+        List<EndpointStats> slowest = tracker.getSlowest(2)
+
+        then:
+        slowest*.url == ['http://slow', 'http://medium']
+    }
+
+    def "getFailing() should order endpoints by failure rate"() {
+        given:
+        tracker.onAttempt(attempt('http://ok', 10, true))
+        tracker.onAttempt(attempt('http://broken', 10, false))
+
+        when:
+        List<EndpointStats> failing = tracker.getFailing(10)
+
+        then:
+        failing*.url == ['http://broken', 'http://ok']
+        failing[0].recentFailures == 1
+        failing[0].failureRate == 1.0
+    }
+
+    def "getBusiest() should include time spent backing off"() {
+        given:
+        DeliveryAttempt retried = attempt('http://flaky', 10, true)
+        retried.backoffMillis = 1000
+        tracker.onAttempt(retried)
+        tracker.onAttempt(attempt('http://slow', 500, true))
+
+        expect:
+        tracker.getBusiest(1)[0].url == 'http://flaky'
+        tracker.getBusiest(1)[0].recentBusyMillis == 1010
+    }
+
+    def "an endpoint which recovers should drop out of the busiest list"() {
+        given:
+        tracker.onAttempt(attempt('http://recovered', 5000, false))
+        tracker.onAttempt(attempt('http://steady', 100, true))
+
+        expect:
+        tracker.getBusiest(1)[0].url == 'http://recovered'
+
+        when:
+        /* Both keep receiving traffic, but only one is still slow */
+        10.times {
+            tracker.clock += (WINDOW / 2)
+            tracker.onAttempt(attempt('http://recovered', 10, true))
+            tracker.onAttempt(attempt('http://steady', 100, true))
+        }
+
+        then:
+        tracker.getBusiest(1)[0].url == 'http://steady'
+        tracker.getFailing(1)[0].url == 'http://recovered'
+        tracker.getFailing(1)[0].recentFailures < 0.01
+    }
+
+    def "the least recently attempted endpoint should be evicted when full"() {
+        given:
+        tracker = new ClockedSlowEndpointTracker(2, WINDOW)
+        tracker.onAttempt(attempt('http://first', 10, true))
+        tracker.clock += 5
+        tracker.onAttempt(attempt('http://second', 10, true))
+        tracker.clock += 5
+        tracker.onAttempt(attempt('http://third', 10, true))
+
+        expect:
+        tracker.getSlowest(10)*.url.sort() == ['http://second', 'http://third']
+    }
+
+    def "endpoints outside of the window should not be reported"() {
+        given:
+        tracker.onAttempt(attempt('http://stale', 10, true))
+
+        when:
+        tracker.clock += (WINDOW + 1)
+
+        then:
+        tracker.getSlowest(10).isEmpty()
+    }
+}
+
+/** Tracker with a clock the specs can move forward */
+class ClockedSlowEndpointTracker extends SlowEndpointTracker {
+    long clock = 1000000
+
+    ClockedSlowEndpointTracker(int maxEndpoints, long windowMillis) {
+        super(maxEndpoints, windowMillis)
+    }
+
+    @Override
+    protected long now() {
+        return this.clock
+    }
+}